@@ -3,6 +3,7 @@ package fr.antoine.rivrs;
 import fr.antoine.rivrs.commands.CountCommand;
 import fr.antoine.rivrs.dao.PlayerCountDao;
 import fr.antoine.rivrs.managers.CountManager;
+import fr.antoine.rivrs.managers.WarmupManager;
 import fr.antoine.rivrs.persist.PersistManager;
 import fr.antoine.rivrs.redis.RedisManager;
 import org.bukkit.plugin.java.JavaPlugin;
@@ -19,6 +20,7 @@ public class Main extends JavaPlugin {
     private RedisManager redisManager;
     private PersistManager persistManager;
     private PlayerCountDao playerCountDao;
+    private CountManager countManager;
 
     /**
      * Called when the plugin is enabled
@@ -32,12 +34,27 @@ public class Main extends JavaPlugin {
         persistManager = new PersistManager(this);
 
         // Initialize the PlayerCountDao
-        playerCountDao = new PlayerCountDao(this).createTableIfNotExists();
+        playerCountDao = new PlayerCountDao(this);
 
-        // Initialize the CountManager
-        var countManager = new CountManager(this);
+        // Registered right away so players are told the server is starting while counting is not yet enabled
+        getCommand("count").setExecutor(new CountCommand(this));
 
-        getCommand("count").setExecutor(new CountCommand(countManager));
+        // Warm up connections and caches off the main thread, then start accepting counts
+        new WarmupManager(this).warmup().whenComplete((ignored, throwable) -> {
+            if (throwable != null) {
+                log("Error during warm-up: " + throwable.getMessage(), Level.SEVERE);
+            }
+            if (isEnabled()) {
+                getServer().getScheduler().runTask(this, this::enableCounting);
+            }
+        });
+    }
+
+    /**
+     * Initializes the CountManager once the warm-up is done, enabling the count command
+     */
+    private void enableCounting() {
+        countManager = new CountManager(this);
         log("Rivrs has been enabled!", Level.INFO);
     }
 
@@ -46,6 +63,12 @@ public class Main extends JavaPlugin {
      */
     @Override
     public void onDisable() {
+        // Drain in-flight counts before the pools they use are closed
+        if (countManager != null) {
+            var report = countManager.shutdown(getConfig().getLong("shutdown.drain-timeout", 5000));
+            log(report.summary(), report.isClean() ? Level.INFO : Level.WARNING);
+        }
+
         redisManager.closePool();
         persistManager.closeDataSource();
         log("Rivrs has been disabled!", Level.INFO);
@@ -79,6 +102,15 @@ public class Main extends JavaPlugin {
         return persistManager;
     }
 
+    /**
+     * Gets the CountManager
+     *
+     * @return The CountManager, or null while the warm-up is still running
+     */
+    public CountManager getCountManager() {
+        return countManager;
+    }
+
     /**
      * Gets the PlayerCountDao
      *
@@ -4,7 +4,7 @@ import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
 
-import fr.antoine.rivrs.managers.CountManager;
+import fr.antoine.rivrs.Main;
 import org.jetbrains.annotations.NotNull;
 
 /**
@@ -12,15 +12,15 @@ import org.jetbrains.annotations.NotNull;
  */
 public class CountCommand implements CommandExecutor {
 
-    private final CountManager countManager;
+    private final Main plugin;
 
     /**
      * Constructor for the CountCommand
      *
-     * @param countManager The count manager
+     * @param plugin The main plugin instance
      */
-    public CountCommand(CountManager countManager) {
-        this.countManager = countManager;
+    public CountCommand(Main plugin) {
+        this.plugin = plugin;
     }
 
     /**
@@ -39,7 +39,15 @@ public class CountCommand implements CommandExecutor {
             sender.sendMessage("§cUsage: /count <playerName>");
             return true;
         }
-        countManager.handle(args[0]);
+        // The count manager is only created once the warm-up is done
+        var countManager = plugin.getCountManager();
+        if (countManager == null) {
+            sender.sendMessage("§cThe server is still starting, please try again in a moment.");
+            return true;
+        }
+        if (!countManager.handle(args[0])) {
+            sender.sendMessage("§cThe server is shutting down, please try again later.");
+        }
         return true;
     }
 } 
\ No newline at end of file
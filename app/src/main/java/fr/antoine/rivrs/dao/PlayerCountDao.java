@@ -4,6 +4,9 @@ import fr.antoine.rivrs.Main;
 import fr.antoine.rivrs.persist.PersistManager;
 import fr.antoine.rivrs.redis.RedisManager;
 
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.HashMap;
 import java.util.Optional;
 import java.util.logging.Level;
 
@@ -15,6 +18,20 @@ public class PlayerCountDao {
     // The channel for player counts in the cache
     private static final String COUNT_CHANNEL = "count";
 
+    private static final String SELECT_COUNT_QUERY = "SELECT count FROM player_counts WHERE player_name = ?";
+    private static final String UPSERT_COUNT_QUERY = "INSERT INTO player_counts (player_name, count) VALUES (?, ?) ON DUPLICATE KEY UPDATE count = ?";
+    private static final String DELETE_COUNT_QUERY = "DELETE FROM player_counts WHERE player_name = ?";
+    private static final String CREATE_TABLE_QUERY = "CREATE TABLE IF NOT EXISTS player_counts (player_name VARCHAR(255) PRIMARY KEY, count BIGINT NOT NULL, "
+            + "last_updated TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP, INDEX (last_updated))";
+    private static final String SELECT_COLUMN_QUERY = "SELECT 1 FROM information_schema.COLUMNS "
+            + "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'player_counts' AND COLUMN_NAME = ?";
+    private static final String SELECT_INDEXED_COLUMN_QUERY = "SELECT 1 FROM information_schema.STATISTICS "
+            + "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'player_counts' AND COLUMN_NAME = ? AND SEQ_IN_INDEX = 1";
+    private static final String ADD_LAST_UPDATED_COLUMN_QUERY = "ALTER TABLE player_counts "
+            + "ADD COLUMN last_updated TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP";
+    private static final String ADD_LAST_UPDATED_INDEX_QUERY = "ALTER TABLE player_counts ADD INDEX last_updated (last_updated)";
+    private static final String SELECT_RECENT_COUNTS_QUERY = "SELECT player_name, count FROM player_counts ORDER BY last_updated DESC LIMIT ?";
+
     private final Main plugin;
     private final PersistManager persistManager;
     private final RedisManager redisManager;
@@ -38,9 +55,8 @@ public class PlayerCountDao {
             return Optional.of(Long.parseLong(cacheValue));
         }
 
-        var query = "SELECT count FROM player_counts WHERE player_name = ?";
         try (var connection = persistManager.getConnection();
-             var statement = connection.prepareStatement(query)) {
+             var statement = connection.prepareStatement(SELECT_COUNT_QUERY)) {
             statement.setString(1, playerName);
             var resultSet = statement.executeQuery();
             if (resultSet.next()) {
@@ -61,9 +77,8 @@ public class PlayerCountDao {
      * @param count      The count to set
      */
     public void upsertPlayerCount(String playerName, long count) {
-        var query = "INSERT INTO player_counts (player_name, count) VALUES (?, ?) ON DUPLICATE KEY UPDATE count = ?";
         try (var connection = persistManager.getConnection();
-             var statement = connection.prepareStatement(query)) {
+             var statement = connection.prepareStatement(UPSERT_COUNT_QUERY)) {
             statement.setString(1, playerName);
             statement.setLong(2, count);
             statement.setLong(3, count);
@@ -83,9 +98,8 @@ public class PlayerCountDao {
      * @param playerName The name of the player
      */
     public void deletePlayerCount(String playerName) {
-        var query = "DELETE FROM player_counts WHERE player_name = ?";
         try (var connection = persistManager.getConnection();
-             var statement = connection.prepareStatement(query)) {
+             var statement = connection.prepareStatement(DELETE_COUNT_QUERY)) {
             statement.setString(1, playerName);
             statement.executeUpdate();
 
@@ -98,21 +112,79 @@ public class PlayerCountDao {
     }
 
     /**
-     * Create the player_counts table if it does not exist
+     * Create the player_counts table if it does not exist, and add the last_updated column and its index
+     * to tables created before they existed
+     * <p>
+     * The information schema is checked first, as an ALTER TABLE takes an exclusive metadata lock on the
+     * table even when it has nothing to do.
      *
      * @return The PlayerCountDao instance
      */
-    public PlayerCountDao createTableIfNotExists() {
-        var query = "CREATE TABLE IF NOT EXISTS player_counts (player_name VARCHAR(255) PRIMARY KEY, count BIGINT NOT NULL)";
+    public PlayerCountDao migrateSchema() {
         try (var connection = persistManager.getConnection();
-             var statement = connection.prepareStatement(query)) {
+             var statement = connection.prepareStatement(CREATE_TABLE_QUERY)) {
             statement.executeUpdate();
+
+            if (!schemaEntryExists(connection, SELECT_COLUMN_QUERY, "last_updated")) {
+                try (var alterStatement = connection.prepareStatement(ADD_LAST_UPDATED_COLUMN_QUERY)) {
+                    alterStatement.executeUpdate();
+                }
+            }
+            if (!schemaEntryExists(connection, SELECT_INDEXED_COLUMN_QUERY, "last_updated")) {
+                try (var alterStatement = connection.prepareStatement(ADD_LAST_UPDATED_INDEX_QUERY)) {
+                    alterStatement.executeUpdate();
+                }
+            }
         } catch (Exception exception) {
-            plugin.log("Error creating table: " + exception.getMessage(), Level.SEVERE);
+            plugin.log("Error migrating schema: " + exception.getMessage(), Level.SEVERE);
         }
         return this;
     }
 
+    /**
+     * Check whether an information schema query matches at least one row for the player_counts table
+     *
+     * @param connection The connection to query with
+     * @param query      The information schema query, taking the column name as its only parameter
+     * @param columnName The name of the column
+     * @return True if a row matched
+     * @throws SQLException If the query failed
+     */
+    private boolean schemaEntryExists(Connection connection, String query, String columnName) throws SQLException {
+        try (var statement = connection.prepareStatement(query)) {
+            statement.setString(1, columnName);
+            try (var resultSet = statement.executeQuery()) {
+                return resultSet.next();
+            }
+        }
+    }
+
+    /**
+     * Load the counts of the most recently updated players into the cache with a single query
+     * <p>
+     * Keys already in the cache are left untouched, as other servers may have updated them since
+     * the query ran.
+     *
+     * @param limit The maximum number of players to load
+     * @return The number of players loaded
+     */
+    public int preloadRecentPlayerCounts(int limit) {
+        var values = new HashMap<String, String>();
+        try (var connection = persistManager.getConnection();
+             var statement = connection.prepareStatement(SELECT_RECENT_COUNTS_QUERY)) {
+            statement.setInt(1, limit);
+            var resultSet = statement.executeQuery();
+            while (resultSet.next()) {
+                values.put(getKeyName(resultSet.getString("player_name")), String.valueOf(resultSet.getLong("count")));
+            }
+        } catch (Exception exception) {
+            plugin.log("Error preloading player counts: " + exception.getMessage(), Level.SEVERE);
+            return 0;
+        }
+
+        return redisManager.setValuesIfAbsent(values);
+    }
+
     /**
      * Get the key name for the player count
      *
@@ -2,7 +2,11 @@ package fr.antoine.rivrs.managers;
 
 import fr.antoine.rivrs.Main;
 import fr.antoine.rivrs.dao.PlayerCountDao;
+import fr.antoine.rivrs.redis.RedisBinaryPubSubListener;
 import fr.antoine.rivrs.redis.RedisManager;
+import fr.antoine.rivrs.redis.codec.CountEvent;
+import fr.antoine.rivrs.redis.codec.CountEventCodec;
+import fr.antoine.rivrs.redis.codec.CountEventType;
 import fr.antoine.rivrs.utils.Colorize;
 import org.bukkit.Bukkit;
 import org.bukkit.Color;
@@ -12,20 +16,68 @@ import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.entity.EntityType;
 import org.bukkit.entity.Firework;
 import org.bukkit.inventory.meta.FireworkMeta;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
 
 /**
  * Manager for counting player interactions
  */
 public class CountManager {
 
-    private static final String COUNT_CHANNEL = "count";
+    // Versioned so servers still publishing the old text messages on "count" are never mixed with binary frames
+    private static final byte[] COUNT_CHANNEL = "count:v1".getBytes(StandardCharsets.UTF_8);
     private static final String DEFAULT_COUNT_WIN_MESSAGE = "<red>Player %player% just finished!</red>";
     private static final String DEFAULT_COUNT_NOTIFY_MESSAGE = "<red>Progression: %count%/%maxcount%</red>";
+    // Peers get a new identifier on every restart, so only the most recently seen origins are remembered
+    private static final int MAX_TRACKED_ORIGINS = 256;
+    private static final int MAX_COUNT_THREADS = 4;
+    // Database connections left free for the notifier and other queries
+    private static final int RESERVED_CONNECTIONS = 2;
 
     private final Main plugin;
     private final RedisManager redisManager;
     private final PlayerCountDao playerCountDao;
 
+    // Identifies this server in published frames, regenerated on every start so sequences never go backwards
+    private final UUID serverId = UUID.randomUUID();
+    // Only touched by the subscriber thread, kept in access order so stale origins are evicted first
+    private final Map<UUID, Long> lastSequences = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<UUID, Long> eldest) {
+            return size() > MAX_TRACKED_ORIGINS;
+        }
+    };
+
+    private final Object publishLock = new Object();
+    private long sequence;
+    private List<CountEvent> pendingEvents = new ArrayList<>();
+
+    // Count operations run on a dedicated executor so they can still be drained once the server stops ticking
+    private final ExecutorService countExecutor;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    // Held by a notify run while it reads from the pools, so shutdown can wait for it
+    private final ReentrantLock notifyLock = new ReentrantLock();
+    private volatile boolean accepting = true;
+
+    private RedisBinaryPubSubListener subscriber;
+    private Thread subscriberThread;
+    private BukkitTask notifyTask;
+    private BukkitTask flushTask;
+
     private int maxCount;
     private String countWinMessage;
     private String countNotifyMessage;
@@ -39,11 +91,38 @@ public class CountManager {
         this.plugin = plugin;
         this.redisManager = plugin.getRedisManager();
         this.playerCountDao = plugin.getPlayerCountDao();
+        this.countExecutor = Executors.newFixedThreadPool(getCountThreads(), countThreadFactory());
 
         initialize();
         subscribe();
 
-        Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, this::notifyPlayers, 0, 20);
+        this.notifyTask = Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, this::notifyPlayers, 0, 20);
+        this.flushTask = Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, this::flushEvents, 1, 1);
+    }
+
+    /**
+     * Gets the number of count threads, kept below the database pool size so counts never starve
+     * other queries of connections
+     *
+     * @return The number of count threads
+     */
+    private int getCountThreads() {
+        var maxPoolSize = plugin.getPersistManager().getMaximumPoolSize();
+        return Math.max(1, Math.min(MAX_COUNT_THREADS, maxPoolSize - RESERVED_CONNECTIONS));
+    }
+
+    /**
+     * Creates the thread factory for the count executor, naming its threads so they can be told apart in thread dumps
+     *
+     * @return The thread factory
+     */
+    private static ThreadFactory countThreadFactory() {
+        var threadCount = new AtomicInteger();
+        return runnable -> {
+            var thread = new Thread(runnable, "rivrs-count-" + threadCount.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
     }
 
     /**
@@ -74,18 +153,51 @@ public class CountManager {
      * Subscribes to the count channel
      */
     private void subscribe() {
-        plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> redisManager.subscribe((channel, value) -> {
-            var data = value.split(":");
-            var playerName = data[0];
-            var count = Long.parseLong(data[1]);
-            if (count >= maxCount) {
-                plugin.getServer().getOnlinePlayers().forEach(player -> {
-                    spawnFirework(player.getLocation());
-                    var parsed = Colorize.colorize(countWinMessage.replace("%player%", playerName));
-                    player.sendMessage(parsed);
-                });
+        this.subscriber = new RedisBinaryPubSubListener(plugin, (channel, message) -> {
+            if (!CountEventCodec.isSupported(message)) { // Published by a newer server, nothing we can read
+                plugin.log("Skipping count frame of unsupported version", Level.FINE);
+                return;
+            }
+
+            var frame = CountEventCodec.decode(message);
+            if (serverId.equals(frame.origin())) { // Our own events are handled locally when published
+                return;
+            }
+
+            var lastSequence = lastSequences.getOrDefault(frame.origin(), -1L);
+            for (var event : frame.events()) {
+                if (event.sequence() <= lastSequence) { // Duplicate or out of order, drop it
+                    continue;
+                }
+                lastSequence = event.sequence();
+                if (event.type() == CountEventType.FINISH) {
+                    announceWinner(event.playerName());
+                }
             }
-        }, COUNT_CHANNEL));
+            lastSequences.put(frame.origin(), lastSequence);
+        });
+
+        // Started on a thread we own so shutdown can tell whether it is still running
+        this.subscriberThread = new Thread(() -> {
+            if (accepting) { // Shutdown may have started before this thread did
+                redisManager.subscribe(subscriber, COUNT_CHANNEL);
+            }
+        }, "rivrs-count-subscriber");
+        subscriberThread.setDaemon(true);
+        subscriberThread.start();
+    }
+
+    /**
+     * Announces to all online players that a player has finished
+     *
+     * @param playerName The name of the player who finished
+     */
+    private void announceWinner(String playerName) {
+        var parsed = Colorize.colorize(countWinMessage.replace("%player%", playerName));
+        plugin.getServer().getOnlinePlayers().forEach(player -> {
+            spawnFirework(player.getLocation());
+            player.sendMessage(parsed);
+        });
     }
 
     /**
@@ -94,6 +206,9 @@ public class CountManager {
      * @param location The location to spawn the firework at
      */
     private void spawnFirework(Location location) {
+        if (!plugin.isEnabled()) { // Tasks can no longer be scheduled while the plugin is disabling
+            return;
+        }
         plugin.getServer().getScheduler().runTask(plugin, () -> {
             Firework firework = (Firework) location.getWorld().spawnEntity(location, EntityType.FIREWORK_ROCKET);
             FireworkMeta meta = firework.getFireworkMeta();
@@ -107,26 +222,171 @@ public class CountManager {
      * Handles the counting of a player
      *
      * @param playerName The name of the player
+     * @return True if the count was accepted, false if the manager is shutting down
+     */
+    public boolean handle(String playerName) {
+        if (!accepting) {
+            return false;
+        }
+
+        inFlight.incrementAndGet();
+        try {
+            countExecutor.execute(() -> {
+                try {
+                    var count = playerCountDao.getPlayerCount(playerName).orElse(0L) + 1;
+                    playerCountDao.upsertPlayerCount(playerName, count);
+                    var type = count >= maxCount ? CountEventType.FINISH : CountEventType.INCREMENT;
+                    enqueueEvent(type, playerName, count);
+                    if (type == CountEventType.FINISH) {
+                        playerCountDao.deletePlayerCount(playerName);
+                        announceWinner(playerName);
+                    }
+                } catch (Exception exception) {
+                    plugin.log("Error counting player " + playerName + ": " + exception.getMessage(), Level.SEVERE);
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+            });
+        } catch (RejectedExecutionException exception) { // Shutdown started after the accepting check
+            inFlight.decrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Queues an event to be published with the next frame
+     *
+     * @param type       The type of the event
+     * @param playerName The name of the player
+     * @param count      The new count of the player
+     */
+    private synchronized void enqueueEvent(CountEventType type, String playerName, long count) {
+        pendingEvents.add(new CountEvent(type, playerName, count, sequence++));
+    }
+
+    /**
+     * Publishes all pending events as a single frame
+     *
+     * @return The number of events published
      */
-    public void handle(String playerName) {
-        plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> {
-            var count = playerCountDao.getPlayerCount(playerName).orElse(0L) + 1;
-            playerCountDao.upsertPlayerCount(playerName, count);
-            redisManager.publish(COUNT_CHANNEL, playerName + ":" + count);
-            if (count >= maxCount) {
-                playerCountDao.deletePlayerCount(playerName);
+    private int flushEvents() {
+        // Held while publishing so frames always leave in sequence order, even if timer runs overlap
+        synchronized (publishLock) {
+            List<CountEvent> events;
+            synchronized (this) {
+                if (pendingEvents.isEmpty()) {
+                    return 0;
+                }
+                events = pendingEvents;
+                pendingEvents = new ArrayList<>();
             }
-        });
+            redisManager.publish(COUNT_CHANNEL, CountEventCodec.encode(serverId, events));
+            return events.size();
+        }
+    }
+
+    /**
+     * Stops accepting counts, waits for in-flight counts, publishes pending events and unsubscribes
+     * from the count channel, without closing any connection pool
+     *
+     * @param timeoutMillis The maximum time to wait for in-flight counts and the subscriber to stop
+     * @return A report of what was drained
+     */
+    public DrainReport shutdown(long timeoutMillis) {
+        var start = System.currentTimeMillis();
+        var deadline = start + timeoutMillis;
+
+        accepting = false;
+        notifyTask.cancel();
+        var notifyStopped = awaitNotifyStopped(deadline);
+
+        countExecutor.shutdown();
+        var pending = inFlight.get();
+        try {
+            if (!countExecutor.awaitTermination(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS)) {
+                countExecutor.shutdownNow();
+            }
+        } catch (InterruptedException exception) {
+            countExecutor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        // Counts that never started, or are still running against soon-closed pools, are lost
+        var abandoned = inFlight.get();
+
+        flushTask.cancel();
+        var flushed = flushEvents();
+
+        var unsubscribed = awaitSubscriberStopped(deadline);
+
+        return new DrainReport(Math.max(0, pending - abandoned), abandoned, flushed, notifyStopped, unsubscribed,
+                System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Unsubscribes from the count channel and waits for the subscriber thread to stop
+     * <p>
+     * The subscriber may still be connecting when shutdown starts, so the unsubscribe is retried until
+     * it is confirmed or the thread exits on its own.
+     *
+     * @param deadline The time by which to give up waiting, in epoch milliseconds
+     * @return True if the subscriber thread stopped
+     */
+    private boolean awaitSubscriberStopped(long deadline) {
+        try {
+            while (subscriberThread.isAlive() && System.currentTimeMillis() < deadline) {
+                try {
+                    if (subscriber.isSubscribed()) {
+                        subscriber.unsubscribe();
+                    }
+                } catch (Exception exception) {
+                    plugin.log("Error unsubscribing from Redis: " + exception.getMessage(), Level.SEVERE);
+                }
+                subscriberThread.join(Math.max(1, Math.min(50, deadline - System.currentTimeMillis())));
+            }
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+        return !subscriberThread.isAlive();
+    }
+
+    /**
+     * Waits for a notify run already in progress to finish, later runs return immediately once shutdown has started
+     *
+     * @param deadline The time by which to give up waiting, in epoch milliseconds
+     * @return True if no notify run is in progress anymore
+     */
+    private boolean awaitNotifyStopped(long deadline) {
+        try {
+            if (notifyLock.tryLock(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS)) {
+                notifyLock.unlock();
+                return true;
+            }
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
     }
 
     /**
      * Notifies all players of the current count
      */
     private void notifyPlayers() {
-        plugin.getServer().getOnlinePlayers().forEach(player -> {
-            var count = playerCountDao.getPlayerCount(player.getName()).map(String::valueOf).orElse("0");
-            var parsed = Colorize.colorize(countNotifyMessage.replace("%count%", count).replace("%maxcount%", String.valueOf(maxCount)));
-            player.sendMessage(parsed);
-        });
+        // Skip this run if the previous one is still going, runs of async timers may overlap
+        if (!notifyLock.tryLock()) {
+            return;
+        }
+        try {
+            if (!accepting) {
+                return;
+            }
+            plugin.getServer().getOnlinePlayers().forEach(player -> {
+                var count = playerCountDao.getPlayerCount(player.getName()).map(String::valueOf).orElse("0");
+                var parsed = Colorize.colorize(countNotifyMessage.replace("%count%", count).replace("%maxcount%", String.valueOf(maxCount)));
+                player.sendMessage(parsed);
+            });
+        } finally {
+            notifyLock.unlock();
+        }
     }
 }
@@ -0,0 +1,36 @@
+package fr.antoine.rivrs.managers;
+
+/**
+ * Report of the work drained by the count manager when shutting down
+ *
+ * @param drainedCounts   The number of in-flight counts that completed
+ * @param abandonedCounts The number of in-flight counts that did not complete before the deadline
+ * @param flushedEvents   The number of pending events published
+ * @param notifyStopped   Whether the progression notifier stopped before the deadline
+ * @param unsubscribed    Whether the subscriber stopped before the deadline
+ * @param elapsedMillis   The time spent draining, in milliseconds
+ */
+public record DrainReport(int drainedCounts, int abandonedCounts, int flushedEvents, boolean notifyStopped, boolean unsubscribed, long elapsedMillis) {
+
+    /**
+     * Checks whether everything was drained before the deadline
+     *
+     * @return True if no count was abandoned and both the notifier and the subscriber stopped
+     */
+    public boolean isClean() {
+        return abandonedCounts == 0 && notifyStopped && unsubscribed;
+    }
+
+    /**
+     * Gets a human-readable summary of the report
+     *
+     * @return The summary
+     */
+    public String summary() {
+        return String.format("Drained %d counts (%d abandoned), published %d events, %s the notifier, %s in %dms",
+                drainedCounts, abandonedCounts, flushedEvents,
+                notifyStopped ? "stopped" : "failed to stop",
+                unsubscribed ? "unsubscribed" : "failed to unsubscribe",
+                elapsedMillis);
+    }
+}
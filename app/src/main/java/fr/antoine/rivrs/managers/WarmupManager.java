@@ -0,0 +1,57 @@
+package fr.antoine.rivrs.managers;
+
+import fr.antoine.rivrs.Main;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.logging.Level;
+
+/**
+ * Manager for warming up connections and caches when the plugin starts
+ */
+public class WarmupManager {
+
+    private final Main plugin;
+    private final Executor asyncExecutor;
+
+    private int preloadLimit;
+
+    /**
+     * Constructor for the WarmupManager class
+     *
+     * @param plugin The main plugin instance
+     */
+    public WarmupManager(Main plugin) {
+        this.plugin = plugin;
+        this.asyncExecutor = task -> plugin.getServer().getScheduler().runTaskAsynchronously(plugin, task);
+
+        initialize();
+    }
+
+    /**
+     * Initializes the warm-up manager
+     */
+    private void initialize() {
+        this.preloadLimit = plugin.getConfig().getInt("warmup.preload-limit", 500);
+    }
+
+    /**
+     * Runs the warm-up off the main thread: the schema check and both pool prefills run in parallel,
+     * then the counts of the most recently active players are loaded into the cache
+     *
+     * @return A future completed once the warm-up is done
+     */
+    public CompletableFuture<Void> warmup() {
+        var start = System.currentTimeMillis();
+        var playerCountDao = plugin.getPlayerCountDao();
+
+        var schema = CompletableFuture.runAsync(playerCountDao::migrateSchema, asyncExecutor);
+        var database = CompletableFuture.runAsync(() -> plugin.getPersistManager().prefillPool(), asyncExecutor);
+        var redis = CompletableFuture.runAsync(() -> plugin.getRedisManager().prefillPool(), asyncExecutor);
+
+        return CompletableFuture.allOf(schema, database, redis)
+                .thenApply(ignored -> playerCountDao.preloadRecentPlayerCounts(preloadLimit))
+                .thenAccept(preloaded -> plugin.log("Warm-up done in " + (System.currentTimeMillis() - start)
+                        + "ms, preloaded " + preloaded + " player counts", Level.INFO));
+    }
+}
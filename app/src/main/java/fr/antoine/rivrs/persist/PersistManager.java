@@ -5,6 +5,7 @@ import com.zaxxer.hikari.HikariDataSource;
 import fr.antoine.rivrs.Main;
 
 import java.sql.Connection;
+import java.util.ArrayList;
 
 /**
  * Manager for handling persistence of data
@@ -51,6 +52,8 @@ public class PersistManager {
         hikariConfig.setIdleTimeout(config.getLong("idle-timeout", 30000));
         hikariConfig.setMaxLifetime(config.getLong("max-lifetime", 1800000));
         hikariConfig.setConnectionTimeout(config.getLong("connection-timeout", 5000));
+        // Connections are opened by the warm-up phase, not while the server is enabling
+        hikariConfig.setInitializationFailTimeout(-1);
 
         dataSource = new HikariDataSource(hikariConfig);
     }
@@ -69,6 +72,42 @@ public class PersistManager {
         }
     }
 
+    /**
+     * Opens the minimum number of idle connections in the connection pool
+     */
+    public void prefillPool() {
+        if (dataSource == null) {
+            return;
+        }
+
+        var connections = new ArrayList<Connection>();
+        try {
+            // Hold every connection at once so the pool has to open distinct ones
+            for (int i = 0; i < dataSource.getMinimumIdle(); i++) {
+                connections.add(dataSource.getConnection());
+            }
+        } catch (Exception exception) {
+            plugin.getLogger().severe("Error prefilling database connection pool: " + exception.getMessage());
+        } finally {
+            for (var connection : connections) {
+                try {
+                    connection.close();
+                } catch (Exception exception) {
+                    plugin.getLogger().severe("Error releasing database connection: " + exception.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the maximum number of connections the pool can open
+     *
+     * @return The maximum pool size, or 0 if the data source could not be set up
+     */
+    public int getMaximumPoolSize() {
+        return dataSource != null ? dataSource.getMaximumPoolSize() : 0;
+    }
+
     /**
      * Closes the data source and releases all connections
      */
@@ -0,0 +1,15 @@
+package fr.antoine.rivrs.redis;
+
+/**
+ * Interface for handling binary messages received from Redis
+ */
+@FunctionalInterface
+public interface BinaryMessageHandler {
+    /**
+     * Handles a binary message received from Redis
+     *
+     * @param channel The channel the message was received from
+     * @param message The message received
+     */
+    void handle(byte[] channel, byte[] message);
+}
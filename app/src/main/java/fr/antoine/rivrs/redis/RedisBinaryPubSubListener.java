@@ -1,23 +1,23 @@
 package fr.antoine.rivrs.redis;
 
-import redis.clients.jedis.JedisPubSub;
 import fr.antoine.rivrs.Main;
+import redis.clients.jedis.BinaryJedisPubSub;
 
 /**
- * Redis PubSub listener for handling channel subscriptions and messages
+ * Redis PubSub listener for handling binary channel subscriptions and messages
  */
-public class RedisPubSubListener extends JedisPubSub {
+public class RedisBinaryPubSubListener extends BinaryJedisPubSub {
 
     private final Main plugin;
-    private final MessageHandler messageHandler;
+    private final BinaryMessageHandler messageHandler;
 
     /**
-     * Creates a new Redis PubSub listener
+     * Creates a new binary Redis PubSub listener
      *
      * @param plugin         The main plugin instance
      * @param messageHandler The handler for received messages
      */
-    public RedisPubSubListener(Main plugin, MessageHandler messageHandler) {
+    public RedisBinaryPubSubListener(Main plugin, BinaryMessageHandler messageHandler) {
         this.plugin = plugin;
         this.messageHandler = messageHandler;
     }
@@ -29,7 +29,7 @@ public class RedisPubSubListener extends JedisPubSub {
      * @param message The message received
      */
     @Override
-    public void onMessage(String channel, String message) {
+    public void onMessage(byte[] channel, byte[] message) {
         try {
             messageHandler.handle(channel, message);
         } catch (Exception exception) {
@@ -37,4 +37,4 @@ public class RedisPubSubListener extends JedisPubSub {
         }
     }
 
-} 
\ No newline at end of file
+}
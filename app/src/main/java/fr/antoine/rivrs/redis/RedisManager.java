@@ -4,7 +4,11 @@ import fr.antoine.rivrs.Main;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
 import redis.clients.jedis.JedisPoolConfig;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.params.SetParams;
 
+import java.util.ArrayList;
+import java.util.Map;
 import java.util.logging.Level;
 
 /**
@@ -61,26 +65,26 @@ public class RedisManager {
     }
 
     /**
-     * Subscribe to multiple channels and execute an action for each received message
+     * Subscribe a listener to multiple binary channels, blocking until the listener unsubscribes
      *
-     * @param messageHandler The action to execute when a message is received
-     * @param channels       The channels to subscribe to
+     * @param listener The listener to notify of received messages, which can be used to unsubscribe
+     * @param channels The channels to subscribe to
      */
-    public void subscribe(MessageHandler messageHandler, String... channels) {
+    public void subscribe(RedisBinaryPubSubListener listener, byte[]... channels) {
         try (Jedis jedis = jedisPool.getResource()) {
-            jedis.subscribe(new RedisPubSubListener(plugin, messageHandler), channels);
+            jedis.subscribe(listener, channels);
         } catch (Exception exception) {
             plugin.log("Error subscribing to Redis channels: " + exception.getMessage(), Level.SEVERE);
         }
     }
 
     /**
-     * Publishes a message to a Redis channel
+     * Publishes a binary message to a Redis channel
      *
      * @param channel The channel to publish the message to
      * @param message The message to publish
      */
-    public void publish(String channel, String message) {
+    public void publish(byte[] channel, byte[] message) {
         try (Jedis jedis = jedisPool.getResource()) {
             jedis.publish(channel, message);
         } catch (Exception exception) {
@@ -102,6 +106,37 @@ public class RedisManager {
         }
     }
 
+    /**
+     * Sets the values of multiple keys in Redis in a single round trip, leaving keys that already exist untouched
+     *
+     * @param values The keys and values to set
+     * @return The number of keys that were set
+     */
+    public int setValuesIfAbsent(Map<String, String> values) {
+        if (values.isEmpty()) {
+            return 0;
+        }
+
+        try (Jedis jedis = jedisPool.getResource()) {
+            var pipeline = jedis.pipelined();
+            var responses = new ArrayList<Response<String>>(values.size());
+            var params = SetParams.setParams().nx();
+            values.forEach((key, value) -> responses.add(pipeline.set(key, value, params)));
+            pipeline.sync();
+
+            var set = 0;
+            for (var response : responses) {
+                if (response.get() != null) { // SET NX replies nil when the key already exists
+                    set++;
+                }
+            }
+            return set;
+        } catch (Exception exception) {
+            plugin.log("Error in Redis setValuesIfAbsent: " + exception.getMessage(), Level.SEVERE);
+        }
+        return 0;
+    }
+
     /**
      * Deletes a key from Redis
      *
@@ -130,6 +165,17 @@ public class RedisManager {
         return null;
     }
 
+    /**
+     * Opens the minimum number of idle connections in the Jedis connection pool
+     */
+    public void prefillPool() {
+        try {
+            jedisPool.preparePool();
+        } catch (Exception exception) {
+            plugin.log("Error prefilling Redis connection pool: " + exception.getMessage(), Level.SEVERE);
+        }
+    }
+
     /**
      * Closes the Jedis connection pool
      */
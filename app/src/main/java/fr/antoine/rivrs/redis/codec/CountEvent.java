@@ -0,0 +1,12 @@
+package fr.antoine.rivrs.redis.codec;
+
+/**
+ * A single count event published by a server
+ *
+ * @param type       The type of the event
+ * @param playerName The name of the player
+ * @param count      The new count of the player
+ * @param sequence   The sequence number of the event on its origin server
+ */
+public record CountEvent(CountEventType type, String playerName, long count, long sequence) {
+}
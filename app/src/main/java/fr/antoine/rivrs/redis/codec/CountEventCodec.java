@@ -0,0 +1,154 @@
+package fr.antoine.rivrs.redis.codec;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.UUID;
+
+/**
+ * Binary codec for count frames exchanged over Redis
+ * <p>
+ * Layout (version 1): version byte, origin UUID (16 bytes), varint event count, then for each event
+ * a type byte, varint sequence, varint count and a varint-length-prefixed UTF-8 player name.
+ */
+public final class CountEventCodec {
+
+    /**
+     * The current version of the wire format
+     */
+    public static final byte VERSION = 1;
+
+    private CountEventCodec() {
+    }
+
+    /**
+     * Encodes a batch of events into a single frame
+     *
+     * @param origin The identifier of the publishing server
+     * @param events The events to encode
+     * @return The encoded frame
+     */
+    public static byte[] encode(UUID origin, Collection<CountEvent> events) {
+        var output = new ByteArrayOutputStream(24 + events.size() * 24);
+        output.write(VERSION);
+        writeLong(output, origin.getMostSignificantBits());
+        writeLong(output, origin.getLeastSignificantBits());
+        writeVarLong(output, events.size());
+        for (var event : events) {
+            var name = event.playerName().getBytes(StandardCharsets.UTF_8);
+            output.write(event.type().getId());
+            writeVarLong(output, event.sequence());
+            writeVarLong(output, event.count());
+            writeVarLong(output, name.length);
+            output.write(name, 0, name.length);
+        }
+        return output.toByteArray();
+    }
+
+    /**
+     * Checks whether a frame uses a version of the wire format this codec can decode
+     *
+     * @param data The encoded frame
+     * @return True if the frame can be decoded
+     */
+    public static boolean isSupported(byte[] data) {
+        return data.length > 0 && data[0] == VERSION;
+    }
+
+    /**
+     * Decodes a frame
+     *
+     * @param data The encoded frame
+     * @return The decoded frame
+     * @throws IllegalArgumentException If the frame is malformed or of an unsupported version
+     */
+    public static CountFrame decode(byte[] data) {
+        var reader = new Reader(data);
+        var version = reader.readByte();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported count frame version: " + version);
+        }
+
+        var origin = new UUID(reader.readLong(), reader.readLong());
+        var size = reader.readLength();
+        var events = new ArrayList<CountEvent>(size);
+        for (int i = 0; i < size; i++) {
+            var type = CountEventType.fromId(reader.readByte());
+            var sequence = reader.readVarLong();
+            var count = reader.readVarLong();
+            var playerName = reader.readString();
+            events.add(new CountEvent(type, playerName, count, sequence));
+        }
+        return new CountFrame(origin, events);
+    }
+
+    private static void writeLong(ByteArrayOutputStream output, long value) {
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            output.write((int) (value >>> shift));
+        }
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream output, long value) {
+        while ((value & ~0x7FL) != 0) {
+            output.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        output.write((int) value);
+    }
+
+    /**
+     * Sequential reader over an encoded frame
+     */
+    private static final class Reader {
+
+        private final byte[] data;
+        private int position;
+
+        private Reader(byte[] data) {
+            this.data = data;
+        }
+
+        private byte readByte() {
+            if (position >= data.length) {
+                throw new IllegalArgumentException("Truncated count frame");
+            }
+            return data[position++];
+        }
+
+        private long readLong() {
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = (value << 8) | (readByte() & 0xFF);
+            }
+            return value;
+        }
+
+        private long readVarLong() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                var b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Malformed varint in count frame");
+        }
+
+        private int readLength() {
+            var length = readVarLong();
+            if (length < 0 || length > data.length - position) {
+                throw new IllegalArgumentException("Invalid length in count frame: " + length);
+            }
+            return (int) length;
+        }
+
+        private String readString() {
+            var length = readLength();
+            var value = new String(data, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+    }
+}
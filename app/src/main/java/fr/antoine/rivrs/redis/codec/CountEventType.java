@@ -0,0 +1,59 @@
+package fr.antoine.rivrs.redis.codec;
+
+/**
+ * Types of count events exchanged between servers
+ */
+public enum CountEventType {
+
+    /**
+     * A player count has been incremented
+     */
+    INCREMENT((byte) 0),
+
+    /**
+     * A player count has reached the maximum count
+     */
+    FINISH((byte) 1);
+
+    // Indexed by wire identifier, not ordinal, so constants can be reordered without changing the format
+    private static final CountEventType[] BY_ID = new CountEventType[Byte.MAX_VALUE + 1];
+
+    static {
+        for (var type : values()) {
+            if (BY_ID[type.id] != null) {
+                throw new IllegalStateException("Duplicate count event type id: " + type.id);
+            }
+            BY_ID[type.id] = type;
+        }
+    }
+
+    private final byte id;
+
+    CountEventType(byte id) {
+        this.id = id;
+    }
+
+    /**
+     * Gets the wire identifier of the event type
+     *
+     * @return The wire identifier
+     */
+    public byte getId() {
+        return id;
+    }
+
+    /**
+     * Gets the event type matching a wire identifier
+     *
+     * @param id The wire identifier
+     * @return The matching event type
+     * @throws IllegalArgumentException If the identifier is unknown
+     */
+    public static CountEventType fromId(byte id) {
+        var type = id < 0 ? null : BY_ID[id];
+        if (type == null) {
+            throw new IllegalArgumentException("Unknown count event type: " + id);
+        }
+        return type;
+    }
+}
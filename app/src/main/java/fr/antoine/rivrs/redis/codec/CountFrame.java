@@ -0,0 +1,13 @@
+package fr.antoine.rivrs.redis.codec;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * A batch of count events published together by a single server
+ *
+ * @param origin The identifier of the server that published the events
+ * @param events The events, ordered by sequence number
+ */
+public record CountFrame(UUID origin, List<CountEvent> events) {
+}